@@ -41,6 +41,38 @@ abstract class Fractal {
      */
     abstract int getColor(double real, double imaginary);
 
+    /**
+     * Computes both the color and the iteration count of the fractal
+     * at a complex point
+     * @param real the real part
+     * @param imaginary the imaginary part
+     * @return the sample
+     */
+    abstract Sample getSample(double real, double imaginary);
+
+    /**
+     * Computes the iteration count and equalization base of the fractal at a complex
+     * point, skipping the plain color which equalized coloring replaces
+     * @param real the real part
+     * @param imaginary the imaginary part
+     * @return the sample, with a color of 0
+     */
+    abstract Sample getEqualizedSample(double real, double imaginary);
+
+    /**
+     * Gets the iteration limit; samples that reach it are inside the fractal
+     * @return maximum iterations
+     */
+    abstract int getMaxIterations();
+
+    /**
+     * Computes the color of a point from its position in the frame's iteration histogram
+     * @param base the base of the point's sample
+     * @param level the fraction of the frame's pixels escaping in at most as many iterations (0 to 1)
+     * @return the color
+     */
+    abstract int getEqualizedColor(int base, double level);
+
     /**
      * Returns a description of the fractal used in the CLI
      * (including the fractal name)
@@ -1,4 +1,7 @@
 import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Scanner;
 
@@ -9,15 +12,48 @@ public class Main {
 
     /**
      * Executes on runtime and starts the app
+     * Pass "--raster FILE" to render into a memory mapped file instead of a window,
+     * "--cds" to run with a class data sharing archive (created on the first run)
+     * and "--no-warmup" to skip warming up the fractal kernels
      * @param args cmd line args
      */
     public static void main(String[] args) {
+        Path rasterFile = null;
+        boolean cds = false;
+        boolean warmup = true;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--raster") && i+1 < args.length) {
+                rasterFile = Paths.get(args[i+1]);
+                i += 1;
+            } else if (args[i].equals("--cds")) {
+                cds = true;
+            } else if (args[i].equals("--no-warmup")) {
+                warmup = false;
+            }
+        }
+
+        if (cds) {
+            try {
+                int exitCode = Startup.relaunchWithArchive(args);
+                if (exitCode >= 0) {
+                    System.exit(exitCode);
+                }
+            } catch (IOException | InterruptedException e) {
+                System.out.println("Could not relaunch with class data archive: " + e.getMessage());
+            }
+        }
+
         Scanner input = new Scanner(System.in);
 
         Fractal[] fractals = {new Mandelbrot(),
                               new Newton(new Sine()),
                               new Newton(new Sinh()),
                               new Newton(new Cubed())};
+        //Compile the kernels while the user is typing
+        if (warmup) {
+            Startup.startWarmup(fractals);
+        }
+        Startup.startInput();
 
         int count = 1;
         for (Fractal fractal : fractals) {
@@ -57,6 +93,8 @@ public class Main {
         Scanner parse = new Scanner(center);
         parse.useDelimiter(",");
 
+        Startup.endInput();
+
         Render renderer = null;
         if (parse.hasNextDouble()) {
             double centerx = parse.nextDouble();
@@ -68,7 +106,32 @@ public class Main {
             renderer = new Render(width, height, zoom, selected);
         }
 
+        //Finish warming up first so it doesn't compete with the render (or its timing)
+        Startup.awaitWarmup();
+        if (rasterFile != null) {
+            renderToFile(renderer, rasterFile);
+            return;
+        }
+
         RenderFrame frame = new RenderFrame(renderer);
         frame.start();
     }
+
+    /**
+     * Renders the fractal into a memory mapped file instead of the screen
+     * so the image size is limited by disk space rather than the heap
+     * @param renderer the Render object
+     * @param file the output file
+     */
+    private static void renderToFile(Render renderer, Path file) {
+        long start = System.nanoTime();
+        try (OffHeapRaster raster = new OffHeapRaster(renderer.getWidth(), renderer.getHeight(), file)) {
+            renderer.renderTo(raster);
+        } catch (IOException e) {
+            System.out.println("Could not write " + file + ": " + e.getMessage());
+            return;
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        System.out.println("Rendered to " + file + " in " + elapsed + " ms");
+    }
 }
\ No newline at end of file
@@ -99,7 +99,38 @@ public class Mandelbrot extends Fractal {
      */
     @Override
     public int getColor(double real, double imaginary) {
+        return getColor(getEscape(real, imaginary));
+    }
+
+    /**
+     * Computes the smooth color and the escape iterations at a complex point
+     * @param real the real part
+     * @param imaginary the imaginary part
+     * @return the sample
+     */
+    @Override
+    public Sample getSample(double real, double imaginary) {
         Escape p = getEscape(real, imaginary);
+        return new Sample(getColor(p), 0, p.getN());
+    }
+
+    /**
+     * Computes only the escape iterations at a complex point, for equalized coloring
+     * @param real the real part
+     * @param imaginary the imaginary part
+     * @return the sample, without a color
+     */
+    @Override
+    public Sample getEqualizedSample(double real, double imaginary) {
+        return new Sample(0, 0, getEscape(real, imaginary).getN());
+    }
+
+    /**
+     * Smooth coloring function for an escape point
+     * @param p the escape point
+     * @return the computed color
+     */
+    private int getColor(Escape p) {
        //https://en.wikipedia.org/wiki/Plotting_algorithms_for_the_Mandelbrot_set
 
         int n = p.getN();
@@ -112,8 +143,35 @@ public class Mandelbrot extends Fractal {
 
         double log_zn = Math.log(zr*zr + zi*zi) / 2;
         double nu = Math.log(log_zn / LN_2) / LN_2;
-        double i = n + 1 - nu;
+        return getPaletteColor(n + 1 - nu);
+    }
+
+    /**
+     * Gets the iteration limit
+     * @return maximum iterations
+     */
+    @Override
+    public int getMaxIterations() {
+        return (int) MAX_ITER;
+    }
 
+    /**
+     * Colors a point by spreading the equalized level over the whole palette
+     * @param base unused, the palette only depends on the level
+     * @param level the fraction of escaping pixels with at most as many iterations
+     * @return the color
+     */
+    @Override
+    public int getEqualizedColor(int base, double level) {
+        return getPaletteColor(level * MAX_ITER);
+    }
+
+    /**
+     * Palette used to color escape points, blending between whole iteration counts
+     * @param i the (smoothed) iteration count
+     * @return the color
+     */
+    private int getPaletteColor(double i) {
         Color c1 = new Color((int) Math.pow(Math.floor(i), 1.5)%255,
                            (int) Math.pow(Math.floor(i), 1.7)%255,
                            (int) Math.pow(Math.floor(i), 1.9)%255);
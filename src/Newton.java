@@ -1,13 +1,15 @@
 import org.apache.commons.numbers.complex.Complex;
 import java.awt.*;
 import java.lang.reflect.Array;
-import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Represents a root of a complex function
  */
 final class Root {
     private final Complex point;
+    private final int index;
     private final int iterations;
     private final boolean exists;
     private final float hue;
@@ -16,14 +18,16 @@ final class Root {
     /**
      * Constructs a new root
      * @param point the complex number where the root is located
+     * @param index the position of the root in the fractal's list of discovered roots
      * @param iterations the number of iterations required to reach the root
-     * @param hue randomly calculated hue for all points which converge to this root
-     * @param saturation randomly calculated saturation for all points which converge to this root
+     * @param hue pseudo-random hue (seeded by the root) for all points which converge to this root
+     * @param saturation pseudo-random saturation (seeded by the root) for all points which converge to this root
      * @param exists false if point does not actually converge to a root
      */
-    public Root(Complex point, int iterations, float hue, float saturation, boolean exists) {
+    public Root(Complex point, int index, int iterations, float hue, float saturation, boolean exists) {
         this.exists = exists;
         this.point = point;
+        this.index = index;
         this.iterations = iterations;
         this.hue = hue;
         this.saturation = saturation;
@@ -37,6 +41,14 @@ final class Root {
         return point;
     }
 
+    /**
+     * Gets the position of the root in the fractal's list of discovered roots
+     * @return index
+     */
+    public int getIndex() {
+        return index;
+    }
+
     /**
      * Gets the number of iterations required to reach the root
      * @return iterations
@@ -75,9 +87,10 @@ final class Root {
  */
 public class Newton extends Fractal {
     private Function func;
-    ArrayList<Root> roots;
+    CopyOnWriteArrayList<Root> roots;
     private static final double TOL = 1.0e-8;
     private static final double MAX_ITER = 1000;
+    private static final double ROOT_PRECISION = 1.0e4;
 
     /**
      * Constructs a newton fractal with custom range
@@ -87,7 +100,7 @@ public class Newton extends Fractal {
     public Newton(Function func, double range) {
         super("Newton Fractal", range);
         this.func = func;
-        roots = new ArrayList<Root>();
+        roots = new CopyOnWriteArrayList<Root>();
     }
 
     /**
@@ -125,27 +138,54 @@ public class Newton extends Fractal {
         }
 
         if (point == null) {
-            return new Root(null, 0, 0, 0, false); //Root doesnt exist
+            return new Root(null, -1, 0, 0, 0, false); //Root doesnt exist
         }
 
-        for (int i=0; i<roots.size(); i+=1) {
-            Root storedRoot = roots.get(i);
-            if (point.subtract(storedRoot.getPoint()).abs() < 4*TOL) {
+        //Render workers share the stored roots: scan without locking, and only lock
+        //to add a new root, checking again in case another worker just added it
+        Root storedRoot = findStoredRoot(point, count);
+        if (storedRoot != null) {
+            return storedRoot;
+        }
+        synchronized (roots) {
+            storedRoot = findStoredRoot(point, count);
+            if (storedRoot != null) {
+                return storedRoot;
+            }
+
+            //Seed the color from the rounded root so separate worker processes agree on it
+            long seed = 31*Math.round(point.getReal()*ROOT_PRECISION) + Math.round(point.getImaginary()*ROOT_PRECISION);
+            Random random = new Random(seed);
+            float hue = (float) (random.nextDouble()*361);
+            float saturation = (float) (random.nextDouble()*101);
+
+            Root newRoot = new Root(point, roots.size(), count, hue, saturation, true);
+            roots.add(newRoot);
+
+            return newRoot;
+        }
+    }
+
+    /**
+     * Looks for an already discovered root close to the given point
+     * @param point the point a complex number converged to
+     * @param count the number of iterations it took
+     * @return the root with the given iterations, or null if it hasn't been discovered
+     */
+    private Root findStoredRoot(Complex point, int count) {
+        for (Root storedRoot : roots) {
+            double dr = point.getReal() - storedRoot.getPoint().getReal();
+            double di = point.getImaginary() - storedRoot.getPoint().getImaginary();
+            if (Math.hypot(dr, di) < 4*TOL) {
                 return new Root(storedRoot.getPoint(),
+                                storedRoot.getIndex(),
                                 count,
                                 storedRoot.getHue(),
                                 storedRoot.getSaturation(),
                                 true);
             }
         }
-
-        float hue = (float) (Math.random()*361);
-        float saturation = (float) (Math.random()*101);
-
-        Root newRoot = new Root(point, count, hue, saturation, true);
-        roots.add(newRoot);
-
-        return newRoot;
+        return null;
     }
 
     /**
@@ -164,7 +204,46 @@ public class Newton extends Fractal {
      */
     @Override
     public int getColor(double real, double imaginary) {
+        return getColor(findRoot(real, imaginary));
+    }
+
+    /**
+     * Computes the color and the iterations needed to reach a root
+     * at the given complex point
+     * @param real the real part
+     * @param imaginary the imaginary part
+     * @return the sample
+     */
+    @Override
+    public Sample getSample(double real, double imaginary) {
+        Root root = findRoot(real, imaginary);
+        if (!root.isExists()) {
+            return new Sample(0, -1, getMaxIterations());
+        }
+        return new Sample(getColor(root), root.getIndex(), root.getIterations());
+    }
+
+    /**
+     * Computes only the root and the iterations needed to reach it, for equalized coloring
+     * @param real the real part
+     * @param imaginary the imaginary part
+     * @return the sample, without a color
+     */
+    @Override
+    public Sample getEqualizedSample(double real, double imaginary) {
         Root root = findRoot(real, imaginary);
+        if (!root.isExists()) {
+            return new Sample(0, -1, getMaxIterations());
+        }
+        return new Sample(0, root.getIndex(), root.getIterations());
+    }
+
+    /**
+     * Gets the color of the fractal for a root
+     * @param root the root
+     * @return the color
+     */
+    private int getColor(Root root) {
         if (!root.isExists()) {
             return 0;
         }
@@ -175,6 +254,30 @@ public class Newton extends Fractal {
         return color;
     }
 
+    /**
+     * Gets the iteration limit
+     * @return maximum iterations
+     */
+    @Override
+    public int getMaxIterations() {
+        return (int) MAX_ITER;
+    }
+
+    /**
+     * Colors a point with its root's hue and saturation and the equalized level as brightness
+     * @param base the index of the root the point converges to
+     * @param level the fraction of converging pixels with at most as many iterations
+     * @return the color
+     */
+    @Override
+    public int getEqualizedColor(int base, double level) {
+        Root root = roots.get(base);
+        //Saturations are stored in 0-101 for the plain palette, HSB needs them in 0-1
+        //or the level no longer maps to brightness
+        float saturation = Math.min(1f, root.getSaturation() / 100f);
+        return Color.HSBtoRGB(root.getHue(), saturation, (float) level);
+    }
+
     /**
      * String description of the fractal used for the CLI
      * @return description
@@ -0,0 +1,213 @@
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Pixel and iteration storage for a render that lives outside of the java heap.
+ * The data is split into bands of whole rows so images larger than a single
+ * buffer can address are still supported. When backed by a file, the bands are
+ * memory mapped and the size of the render is only limited by disk space.
+ *
+ * File layout: all pixels (one int per pixel, row major) followed by all
+ * iteration counts (one int per pixel, row major), in native byte order
+ */
+public class OffHeapRaster implements Closeable {
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final long MAX_BAND_BYTES = 1L << 28;
+
+    private int width;
+    private int height;
+    private int bandRows;
+    private ByteBuffer[] pixels;
+    private ByteBuffer[] iterations;
+    private FileChannel channel;
+
+    /**
+     * Constructs a raster backed by direct (off-heap) memory
+     * @param width the width of the raster in pixels
+     * @param height the height of the raster in pixels
+     */
+    public OffHeapRaster(int width, int height) {
+        init(width, height);
+        for (int band = 0; band < pixels.length; band++) {
+            int size = getBandBytes(band);
+            pixels[band] = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+            iterations[band] = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Constructs a raster memory mapped to a file
+     * The file is created if it does not exist and grown to fit the raster
+     * @param width the width of the raster in pixels
+     * @param height the height of the raster in pixels
+     * @param file the backing file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public OffHeapRaster(int width, int height, Path file) throws IOException {
+        init(width, height);
+        channel = FileChannel.open(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long planeBytes = (long) width * height * BYTES_PER_PIXEL;
+        long bandBytes = (long) bandRows * width * BYTES_PER_PIXEL;
+        for (int band = 0; band < pixels.length; band++) {
+            int size = getBandBytes(band);
+            long offset = band * bandBytes;
+            pixels[band] = channel.map(FileChannel.MapMode.READ_WRITE, offset, size)
+                    .order(ByteOrder.nativeOrder());
+            iterations[band] = channel.map(FileChannel.MapMode.READ_WRITE, planeBytes + offset, size)
+                    .order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Validates the dimensions and splits the raster into bands
+     * @param width the width of the raster in pixels
+     * @param height the height of the raster in pixels
+     */
+    private void init(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Raster dimensions must be positive");
+        }
+        long rowBytes = (long) width * BYTES_PER_PIXEL;
+        if (rowBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Raster width is too large: " + width);
+        }
+        this.width = width;
+        this.height = height;
+        this.bandRows = (int) Math.min(height, Math.max(1, MAX_BAND_BYTES / rowBytes));
+        int bands = (height + bandRows - 1) / bandRows;
+        this.pixels = new ByteBuffer[bands];
+        this.iterations = new ByteBuffer[bands];
+    }
+
+    /**
+     * Gets the size of a band in bytes (the last band may be shorter)
+     * @param band the band index
+     * @return size in bytes
+     */
+    private int getBandBytes(int band) {
+        int rows = Math.min(bandRows, height - band * bandRows);
+        return rows * width * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * Gets the byte offset of a pixel inside its band
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the offset
+     */
+    private int getOffset(int x, int y) {
+        return ((y % bandRows) * width + x) * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * Sets the rgb color of a pixel
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param rgb the color
+     */
+    public void setPixel(int x, int y, int rgb) {
+        pixels[y / bandRows].putInt(getOffset(x, y), rgb);
+    }
+
+    /**
+     * Gets the rgb color of a pixel
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the color
+     */
+    public int getPixel(int x, int y) {
+        return pixels[y / bandRows].getInt(getOffset(x, y));
+    }
+
+    /**
+     * Sets the iteration count of a pixel
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param count the iteration count
+     */
+    public void setIterations(int x, int y, int count) {
+        iterations[y / bandRows].putInt(getOffset(x, y), count);
+    }
+
+    /**
+     * Gets the iteration count of a pixel
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the iteration count
+     */
+    public int getIterations(int x, int y) {
+        return iterations[y / bandRows].getInt(getOffset(x, y));
+    }
+
+    /**
+     * Copies a region of the raster into an on-heap image, e.g. for display
+     * @param x the left edge of the region
+     * @param y the top edge of the region
+     * @param width the width of the region
+     * @param height the height of the region
+     * @return the image
+     */
+    public BufferedImage getImage(int x, int y, int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] line = new int[width];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                line[col] = getPixel(x + col, y + row);
+            }
+            img.setRGB(0, row, width, 1, line, 0, width);
+        }
+        return img;
+    }
+
+    /**
+     * Get the width of the raster in pixels
+     * @return width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the height of the raster in pixels
+     * @return height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Writes any modified mapped data back to the file
+     * Does nothing for a raster that is not file backed
+     */
+    public void force() {
+        if (channel == null) {
+            return;
+        }
+        for (int band = 0; band < pixels.length; band++) {
+            ((MappedByteBuffer) pixels[band]).force();
+            ((MappedByteBuffer) iterations[band]).force();
+        }
+    }
+
+    /**
+     * Flushes and closes the backing file, if any
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            force();
+            channel.close();
+        }
+    }
+}
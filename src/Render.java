@@ -1,16 +1,20 @@
 import java.awt.image.*;
 import java.awt.Color;
+import java.util.stream.IntStream;
 
 /**
  * Class used to generate a visual image of a Fractal object
  */
 public class Render {
+    private static final int TILE_SIZE = 64;
+
     private int width;
     private int height;
     private double zoom;
     private Fractal fractal;
     private double centerx;
     private double centery;
+    private boolean equalized;
 
     /**
      * Constructs new Render object with default center
@@ -59,18 +63,274 @@ public class Render {
      * @return the image
      */
     public BufferedImage getImage() {
-        double pixelRatio = (fractal.getRange()/width)*(1/zoom);
+        if (equalized) {
+            //Heap arrays, so nothing is left in direct memory once the frame is dropped
+            int[] pixels = new int[width*height];
+            int[] iterations = new int[width*height];
+            render(new Target() {
+                @Override
+                public void setPixel(int x, int y, int rgb) {
+                    pixels[y*width + x] = rgb;
+                }
+
+                @Override
+                public int getPixel(int x, int y) {
+                    return pixels[y*width + x];
+                }
+
+                @Override
+                public void setIterations(int x, int y, int count) {
+                    iterations[y*width + x] = count;
+                }
+
+                @Override
+                public int getIterations(int x, int y) {
+                    return iterations[y*width + x];
+                }
+            });
+            BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            img.setRGB(0, 0, width, height, pixels, 0, width);
+            return img;
+        }
+        double pixelRatio = getPixelRatio();
         BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                double real = centerx + ((x-width/2)*pixelRatio);
-                double imaginary = centery + (-1*((y-height/2)*pixelRatio));
+                double real = getReal(x, pixelRatio);
+                double imaginary = getImaginary(y, pixelRatio);
                 img.setRGB(x, y, fractal.getColor(real, imaginary));
             }
         }
         return img;
     }
 
+    /**
+     * Renders the fractal into an off-heap raster of the same width and height.
+     * The image is split into square tiles which are computed in parallel, and
+     * each worker writes colors and iteration counts straight into the raster.
+     *
+     * With histogram equalization, every worker also counts iterations into its
+     * own histogram while rendering. The histograms are summed when the parallel
+     * tasks join, and a final pass recolors each pixel from the cumulative histogram.
+     * Until then the pixel plane holds each sample's base instead of a color
+     * @param raster the destination raster
+     */
+    public void renderTo(OffHeapRaster raster) {
+        if (raster.getWidth() != width || raster.getHeight() != height) {
+            throw new IllegalArgumentException("Raster size does not match the render size");
+        }
+        render(new Target() {
+            @Override
+            public void setPixel(int x, int y, int rgb) {
+                raster.setPixel(x, y, rgb);
+            }
+
+            @Override
+            public int getPixel(int x, int y) {
+                return raster.getPixel(x, y);
+            }
+
+            @Override
+            public void setIterations(int x, int y, int count) {
+                raster.setIterations(x, y, count);
+            }
+
+            @Override
+            public int getIterations(int x, int y) {
+                return raster.getIterations(x, y);
+            }
+        });
+    }
+
+    /**
+     * Storage for the colors and iteration counts of a frame being rendered,
+     * either on the heap or in an off-heap raster
+     */
+    private interface Target {
+        /**
+         * Sets the color (or base, before equalization) of a pixel
+         * @param x the x coordinate
+         * @param y the y coordinate
+         * @param rgb the value
+         */
+        void setPixel(int x, int y, int rgb);
+
+        /**
+         * Gets the color (or base, before equalization) of a pixel
+         * @param x the x coordinate
+         * @param y the y coordinate
+         * @return the value
+         */
+        int getPixel(int x, int y);
+
+        /**
+         * Sets the iteration count of a pixel
+         * @param x the x coordinate
+         * @param y the y coordinate
+         * @param count the iteration count
+         */
+        void setIterations(int x, int y, int count);
+
+        /**
+         * Gets the iteration count of a pixel
+         * @param x the x coordinate
+         * @param y the y coordinate
+         * @return the iteration count
+         */
+        int getIterations(int x, int y);
+    }
+
+    /**
+     * Renders the frame in parallel tiles into the target, as described in renderTo
+     * @param raster the destination
+     */
+    private void render(Target raster) {
+        double pixelRatio = getPixelRatio();
+        int maxIterations = fractal.getMaxIterations();
+        int tilesx = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesy = (height + TILE_SIZE - 1) / TILE_SIZE;
+
+        long[] histogram = IntStream.range(0, tilesx*tilesy).parallel().collect(
+                () -> new long[maxIterations + 1],
+                (counts, tile) -> {
+                    int startx = (tile % tilesx) * TILE_SIZE;
+                    int starty = (tile / tilesx) * TILE_SIZE;
+                    int endx = Math.min(startx + TILE_SIZE, width);
+                    int endy = Math.min(starty + TILE_SIZE, height);
+                    for (int y = starty; y < endy; y++) {
+                        for (int x = startx; x < endx; x++) {
+                            double real = getReal(x, pixelRatio);
+                            double imaginary = getImaginary(y, pixelRatio);
+                            Sample sample = equalized ? fractal.getEqualizedSample(real, imaginary)
+                                                      : fractal.getSample(real, imaginary);
+                            int n = Math.min(sample.getIterations(), maxIterations);
+                            raster.setPixel(x, y, equalized ? sample.getBase() : sample.getColor());
+                            raster.setIterations(x, y, n);
+                            counts[n] += 1;
+                        }
+                    }
+                },
+                (a, b) -> {
+                    for (int n = 0; n <= maxIterations; n++) {
+                        a[n] += b[n];
+                    }
+                });
+        if (!equalized) {
+            return;
+        }
+
+        double[] levels = getLevels(histogram);
+        IntStream.range(0, tilesx*tilesy).parallel().forEach(tile -> {
+            int startx = (tile % tilesx) * TILE_SIZE;
+            int starty = (tile / tilesx) * TILE_SIZE;
+            int endx = Math.min(startx + TILE_SIZE, width);
+            int endy = Math.min(starty + TILE_SIZE, height);
+            //Neighbouring pixels usually share a base and iteration count, so reuse the last color
+            int lastBase = 0;
+            int lastN = maxIterations;
+            int lastColor = 0;
+            for (int y = starty; y < endy; y++) {
+                for (int x = startx; x < endx; x++) {
+                    int n = raster.getIterations(x, y);
+                    int base = raster.getPixel(x, y);
+                    if (n != lastN || base != lastBase) {
+                        lastN = n;
+                        lastBase = base;
+                        lastColor = n == maxIterations ? 0 : fractal.getEqualizedColor(base, levels[n]);
+                    }
+                    raster.setPixel(x, y, lastColor);
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the lookup table from iteration count to equalized level (the cumulative
+     * distribution of the histogram). Points that reached the iteration limit are
+     * inside the fractal and left out
+     * @param histogram number of pixels for every iteration count
+     * @return level (0 to 1) for every iteration count
+     */
+    private static double[] getLevels(long[] histogram) {
+        int maxIterations = histogram.length - 1;
+        long total = 0;
+        for (int n = 0; n < maxIterations; n++) {
+            total += histogram[n];
+        }
+        double[] levels = new double[histogram.length];
+        long cumulative = 0;
+        for (int n = 0; n < maxIterations; n++) {
+            cumulative += histogram[n];
+            levels[n] = total == 0 ? 0 : (double) cumulative / total;
+        }
+        return levels;
+    }
+
+    /**
+     * Computes the colors of a rectangular tile of the image
+     * @param startx the left edge of the tile in pixels
+     * @param starty the top edge of the tile in pixels
+     * @param tileWidth the width of the tile in pixels
+     * @param tileHeight the height of the tile in pixels
+     * @return the rgb colors of the tile in row major order
+     */
+    public int[] getTile(int startx, int starty, int tileWidth, int tileHeight) {
+        int[] pixels = new int[tileWidth*tileHeight];
+        renderTile(startx, starty, tileWidth, tileHeight, pixels, new int[tileWidth*tileHeight]);
+        return pixels;
+    }
+
+    /**
+     * Computes the colors and iteration counts of a rectangular tile of the image,
+     * rendering its rows in parallel
+     * @param startx the left edge of the tile in pixels
+     * @param starty the top edge of the tile in pixels
+     * @param tileWidth the width of the tile in pixels
+     * @param tileHeight the height of the tile in pixels
+     * @param pixels receives the rgb colors of the tile in row major order
+     * @param iterations receives the iteration counts of the tile in row major order
+     */
+    public void renderTile(int startx, int starty, int tileWidth, int tileHeight, int[] pixels, int[] iterations) {
+        double pixelRatio = getPixelRatio();
+        IntStream.range(0, tileHeight).parallel().forEach(y -> {
+            for (int x = 0; x < tileWidth; x++) {
+                double real = getReal(startx + x, pixelRatio);
+                double imaginary = getImaginary(starty + y, pixelRatio);
+                Sample sample = fractal.getSample(real, imaginary);
+                pixels[y*tileWidth + x] = sample.getColor();
+                iterations[y*tileWidth + x] = sample.getIterations();
+            }
+        });
+    }
+
+    /**
+     * Gets the size of a single pixel on the complex plane
+     * @return pixel ratio
+     */
+    private double getPixelRatio() {
+        return (fractal.getRange()/width)*(1/zoom);
+    }
+
+    /**
+     * Converts an x pixel coordinate into the real part of a complex point
+     * @param x the x pixel coordinate
+     * @param pixelRatio the size of a pixel
+     * @return the real part
+     */
+    private double getReal(int x, double pixelRatio) {
+        return centerx + ((x-width/2)*pixelRatio);
+    }
+
+    /**
+     * Converts a y pixel coordinate into the imaginary part of a complex point
+     * @param y the y pixel coordinate
+     * @param pixelRatio the size of a pixel
+     * @return the imaginary part
+     */
+    private double getImaginary(int y, double pixelRatio) {
+        return centery + (-1*((y-height/2)*pixelRatio));
+    }
+
     /**
      * Get the width of the image in pixels
      * @return width
@@ -103,6 +363,23 @@ public class Render {
         this.zoom = zoom;
     }
 
+    /**
+     * Check whether the image is colored by histogram equalization
+     * @return equalized
+     */
+    public boolean isEqualized() {
+        return equalized;
+    }
+
+    /**
+     * Sets whether the image is colored by histogram equalization,
+     * which spreads the palette evenly over the pixels of the frame
+     * @param equalized the new coloring mode
+     */
+    public void setEqualized(boolean equalized) {
+        this.equalized = equalized;
+    }
+
     /**
      * Get the fractal object
      * @return the fractal
@@ -0,0 +1,249 @@
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Canonical description of a frame, used to recognize identical render requests
+ */
+final class RenderKey {
+    private final Fractal source;
+    private final String fractal;
+    private final double range;
+    private final int width;
+    private final int height;
+    private final double zoom;
+    private final double centerx;
+    private final double centery;
+    private final boolean equalized;
+
+    /**
+     * Constructs a key from the current state of a Render object
+     * Adding 0.0 turns -0.0 into 0.0 so both compare equal
+     * @param render the Render object
+     */
+    public RenderKey(Render render) {
+        this.source = render.getFractal();
+        this.fractal = source.toString();
+        this.range = render.getFractal().getRange() + 0.0;
+        this.width = render.getWidth();
+        this.height = render.getHeight();
+        this.zoom = render.getZoom() + 0.0;
+        this.centerx = render.getCenterx() + 0.0;
+        this.centery = render.getCentery() + 0.0;
+        this.equalized = render.isEqualized();
+    }
+
+    /**
+     * Creates a Render object for exactly this frame
+     * @return the Render object
+     */
+    public Render createRender() {
+        Render render = new Render(width, height, zoom, source, centerx, centery);
+        render.setEqualized(equalized);
+        return render;
+    }
+
+    /**
+     * Gets the memory used by an image of this frame in bytes
+     * @return weight
+     */
+    public long getWeight() {
+        return 4L * width * height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RenderKey)) {
+            return false;
+        }
+        RenderKey other = (RenderKey) o;
+        return width == other.width
+                && equalized == other.equalized
+                && height == other.height
+                && Double.compare(range, other.range) == 0
+                && Double.compare(zoom, other.zoom) == 0
+                && Double.compare(centerx, other.centerx) == 0
+                && Double.compare(centery, other.centery) == 0
+                && fractal.equals(other.fractal);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fractal, range, width, height, zoom, centerx, centery, equalized);
+    }
+}
+
+/**
+ * Render facade that shares work between identical requests.
+ * Concurrent requests for the same frame wait on a single computation, and
+ * finished frames are kept in a least-recently-used cache bounded by the
+ * total size of the images in bytes.
+ *
+ * Returned images are shared between callers and must not be modified
+ */
+public class RenderCache {
+    private final long maxWeight;
+    private long weight;
+    private final LinkedHashMap<RenderKey, BufferedImage> images;
+    private final ConcurrentHashMap<RenderKey, CompletableFuture<BufferedImage>> inFlight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs an empty cache
+     * @param maxWeight the maximum total size of the cached images in bytes
+     */
+    public RenderCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+        this.images = new LinkedHashMap<RenderKey, BufferedImage>(16, 0.75f, true);
+        this.inFlight = new ConcurrentHashMap<RenderKey, CompletableFuture<BufferedImage>>();
+    }
+
+    /**
+     * Gets the image for the current state of the Render object, reusing a cached
+     * frame or joining an identical render that is already in progress when possible
+     * @param render the Render object
+     * @return the image
+     */
+    public BufferedImage getImage(Render render) {
+        RenderKey key = new RenderKey(render);
+        BufferedImage img = lookup(key);
+        if (img != null) {
+            hits.increment();
+            return img;
+        }
+
+        CompletableFuture<BufferedImage> created = new CompletableFuture<BufferedImage>();
+        CompletableFuture<BufferedImage> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            //Another thread may have finished this frame between the lookup and putIfAbsent
+            img = lookup(key);
+            if (img != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                //Render from the key so later changes to the caller's Render object can't leak in
+                img = key.createRender().getImage();
+                store(key, img);
+            }
+            created.complete(img);
+            return img;
+        } catch (Throwable e) {
+            //Coalesced callers must be released even when the render fails with an Error
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * Gets a cached image and marks it as recently used
+     * @param key the frame
+     * @return the image, or null if it is not cached
+     */
+    private synchronized BufferedImage lookup(RenderKey key) {
+        return images.get(key);
+    }
+
+    /**
+     * Adds an image to the cache, evicting the least recently used frames until it fits.
+     * Images larger than the whole cache are not stored
+     * @param key the frame
+     * @param img the image
+     */
+    private synchronized void store(RenderKey key, BufferedImage img) {
+        long size = key.getWeight();
+        if (size > maxWeight || images.containsKey(key)) {
+            return;
+        }
+        Iterator<Map.Entry<RenderKey, BufferedImage>> eldest = images.entrySet().iterator();
+        while (weight + size > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().getKey().getWeight();
+            eldest.remove();
+            evictions.increment();
+        }
+        images.put(key, img);
+        weight += size;
+    }
+
+    /**
+     * Get the number of requests answered from the cache
+     * @return hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of requests that had to render a new frame
+     * @return misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of requests that waited on an identical render already in progress
+     * @return coalesced requests
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Get the number of frames evicted to make room for new ones
+     * @return evictions
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the total size of the cached images in bytes
+     * @return weight
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Text summary of the cache statistics
+     * @return statistics
+     */
+    @Override
+    public String toString() {
+        return "RenderCache[hits=" + getHitCount()
+                + ", misses=" + getMissCount()
+                + ", coalesced=" + getCoalescedCount()
+                + ", evictions=" + getEvictionCount()
+                + ", weight=" + getWeight() + "/" + maxWeight + "]";
+    }
+}
@@ -0,0 +1,380 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents a rectangular piece of a frame handed to a worker
+ */
+final class Tile {
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+    private int attempts;
+
+    /**
+     * Constructs a new Tile
+     * @param x the left edge in pixels
+     * @param y the top edge in pixels
+     * @param width the width in pixels
+     * @param height the height in pixels
+     */
+    public Tile(int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Get the left edge
+     * @return x
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Get the top edge
+     * @return y
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Get the width
+     * @return width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the height
+     * @return height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Records a failed attempt at rendering this tile
+     * @return the number of failed attempts so far
+     */
+    public int fail() {
+        attempts += 1;
+        return attempts;
+    }
+}
+
+/**
+ * Splits a frame into tiles, renders them on RenderWorker processes and reassembles the result
+ */
+public class RenderCoordinator {
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int TIMEOUT_MS = 60000;
+
+    private List<InetSocketAddress> workers;
+    private int tileSize;
+
+    /**
+     * Constructs a coordinator for the given workers
+     * @param workers the addresses of the RenderWorker processes
+     * @param tileSize the width and height of a tile in pixels
+     */
+    public RenderCoordinator(List<InetSocketAddress> workers, int tileSize) {
+        this.workers = workers;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Renders the frame described by the Render object on the workers
+     * @param render the frame to render
+     * @return the image
+     * @throws IOException if a tile keeps failing or every worker is lost
+     */
+    public BufferedImage getImage(Render render) throws IOException {
+        BufferedImage img = new BufferedImage(render.getWidth(), render.getHeight(), BufferedImage.TYPE_INT_RGB);
+        render(render, (tile, pixels, iterations) ->
+                img.setRGB(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), pixels, 0, tile.getWidth()));
+        return img;
+    }
+
+    /**
+     * Renders the frame described by the Render object on the workers into an off-heap raster
+     * @param render the frame to render
+     * @param raster the destination raster, with the same size as the frame
+     * @throws IOException if a tile keeps failing or every worker is lost
+     */
+    public void renderTo(Render render, OffHeapRaster raster) throws IOException {
+        if (raster.getWidth() != render.getWidth() || raster.getHeight() != render.getHeight()) {
+            throw new IllegalArgumentException("Raster size does not match the render size");
+        }
+        render(render, (tile, pixels, iterations) -> {
+            for (int y = 0; y < tile.getHeight(); y++) {
+                for (int x = 0; x < tile.getWidth(); x++) {
+                    raster.setPixel(tile.getX() + x, tile.getY() + y, pixels[y*tile.getWidth() + x]);
+                    raster.setIterations(tile.getX() + x, tile.getY() + y, iterations[y*tile.getWidth() + x]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Receives finished tiles from the worker connections
+     */
+    private interface TileWriter {
+        /**
+         * Stores the pixels of a finished tile (called concurrently for different tiles)
+         * @param tile the tile
+         * @param pixels the rgb colors of the tile in row major order
+         * @param iterations the iteration counts of the tile in row major order
+         */
+        void write(Tile tile, int[] pixels, int[] iterations);
+    }
+
+    /**
+     * Hands out every tile of the frame to the workers, one connection per worker,
+     * and requeues tiles whose worker failed
+     * @param render the frame to render
+     * @param writer receives the finished tiles
+     * @throws IOException if a tile keeps failing or every worker is lost
+     */
+    private void render(Render render, TileWriter writer) throws IOException {
+        if (render.isEqualized()) {
+            throw new IllegalArgumentException("Histogram equalization needs the whole frame and can't be split into tiles");
+        }
+        LinkedBlockingQueue<Tile> pending = new LinkedBlockingQueue<Tile>();
+        for (int y = 0; y < render.getHeight(); y += tileSize) {
+            for (int x = 0; x < render.getWidth(); x += tileSize) {
+                pending.add(new Tile(x, y,
+                                     Math.min(tileSize, render.getWidth() - x),
+                                     Math.min(tileSize, render.getHeight() - y)));
+            }
+        }
+        AtomicInteger remaining = new AtomicInteger(pending.size());
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<String> errors = new ArrayList<String>();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (InetSocketAddress address : workers) {
+            Thread thread = new Thread(() -> work(address, render, pending, remaining, failed, writer, errors));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for workers");
+            }
+        }
+
+        synchronized (errors) {
+            if (failed.get() || remaining.get() > 0) {
+                throw new IOException(remaining.get() + " tiles could not be rendered: " + errors);
+            }
+        }
+    }
+
+    /**
+     * Pulls tiles from the queue and renders them on a single worker until the frame is done.
+     * A failed tile is put back in the queue for any worker to retry, and the connection
+     * is reopened. The worker is given up on when it cannot be reached
+     */
+    private void work(InetSocketAddress address, Render render, LinkedBlockingQueue<Tile> pending,
+                      AtomicInteger remaining, AtomicBoolean failed, TileWriter writer, List<String> errors) {
+        Socket socket = null;
+        DataInputStream in = null;
+        DataOutputStream out = null;
+        try {
+            while (remaining.get() > 0 && !failed.get()) {
+                Tile tile = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (tile == null) {
+                    continue;
+                }
+                try {
+                    if (socket == null) {
+                        socket = new Socket();
+                        socket.connect(address, TIMEOUT_MS);
+                        socket.setSoTimeout(TIMEOUT_MS);
+                        //Requests are small and follow a large response, send them right away
+                        socket.setTcpNoDelay(true);
+                        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                    }
+                    int[] pixels = new int[tile.getWidth()*tile.getHeight()];
+                    int[] iterations = new int[tile.getWidth()*tile.getHeight()];
+                    requestTile(in, out, render, tile, pixels, iterations);
+                    writer.write(tile, pixels, iterations);
+                    remaining.decrementAndGet();
+                } catch (IOException e) {
+                    closeQuietly(socket);
+                    socket = null;
+                    synchronized (errors) {
+                        errors.add(address + ": " + e.getMessage());
+                    }
+                    if (tile.fail() >= MAX_ATTEMPTS) {
+                        failed.set(true);
+                        return;
+                    }
+                    pending.add(tile);
+                    if (!isReachable(address)) {
+                        return;
+                    }
+                } catch (Throwable e) {
+                    //Anything else (out of memory, a failing TileWriter) can't be retried,
+                    //fail the frame so the other connections stop instead of waiting forever
+                    synchronized (errors) {
+                        errors.add(address + ": " + e);
+                    }
+                    failed.set(true);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Sends a single tile request over an open connection and reads back the pixels
+     * @param in the input stream of the connection
+     * @param out the output stream of the connection
+     * @param render the frame being rendered
+     * @param tile the tile
+     * @param pixels receives the rgb colors of the tile in row major order
+     * @param iterations receives the iteration counts of the tile in row major order
+     * @throws IOException if the worker fails
+     */
+    private void requestTile(DataInputStream in, DataOutputStream out, Render render, Tile tile,
+                             int[] pixels, int[] iterations) throws IOException {
+        out.writeUTF(render.getFractal().toString());
+        out.writeDouble(render.getFractal().getRange());
+        out.writeInt(render.getWidth());
+        out.writeInt(render.getHeight());
+        out.writeDouble(render.getZoom());
+        out.writeDouble(render.getCenterx());
+        out.writeDouble(render.getCentery());
+        out.writeInt(tile.getX());
+        out.writeInt(tile.getY());
+        out.writeInt(tile.getWidth());
+        out.writeInt(tile.getHeight());
+        out.flush();
+
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = in.readInt();
+        }
+        for (int i = 0; i < iterations.length; i++) {
+            iterations[i] = in.readInt();
+        }
+    }
+
+    /**
+     * Checks whether a worker still accepts connections
+     * @param address the worker address
+     * @return true if a connection could be opened
+     */
+    private boolean isReachable(InetSocketAddress address) {
+        try (Socket probe = new Socket()) {
+            probe.connect(address, TIMEOUT_MS);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes a socket, ignoring errors
+     * @param socket the socket (may be null)
+     */
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            return;
+        }
+    }
+
+    /**
+     * Starts a RenderWorker in a new JVM on this machine
+     * @return the worker process, with its port already announced
+     * @throws IOException if the process cannot be started
+     */
+    private static Process startLocalWorker() throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "RenderWorker");
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+
+    /**
+     * Scaling benchmark: starts local worker processes and renders the same frame
+     * with 1, 2, ... n workers, reporting the speedup and efficiency of each run
+     * @param args number of workers, width and height (defaults: 4 1920 1080)
+     * @throws IOException if a worker cannot be started or a render fails
+     */
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 1920;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 1080;
+        Render render = new Render(width, height, 1, new Mandelbrot());
+
+        List<Process> processes = new ArrayList<Process>();
+        try {
+            List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+            for (int i = 0; i < count; i++) {
+                Process process = startLocalWorker();
+                processes.add(process);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                String port = reader.readLine();
+                if (port == null) {
+                    throw new IOException("Worker " + i + " exited before listening");
+                }
+                addresses.add(new InetSocketAddress("localhost", Integer.parseInt(port.strip())));
+            }
+
+            //Warm up every worker's JIT so the first measurement isn't penalized
+            new RenderCoordinator(addresses, 64).getImage(render);
+
+            double baseline = 0;
+            System.out.println("workers  time(ms)  speedup  efficiency");
+            for (int n = 1; n <= count; n++) {
+                RenderCoordinator coordinator = new RenderCoordinator(addresses.subList(0, n), 64);
+                long start = System.nanoTime();
+                coordinator.getImage(render);
+                double elapsed = (System.nanoTime() - start) / 1.0e6;
+                if (n == 1) {
+                    baseline = elapsed;
+                }
+                double speedup = baseline / elapsed;
+                System.out.printf("%7d  %8.1f  %7.2f  %9.0f%%%n", n, elapsed, speedup, 100 * speedup / n);
+            }
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+    }
+}
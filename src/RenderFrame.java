@@ -8,6 +8,7 @@ import javax.swing.*;
  */
 public class RenderFrame extends JFrame implements KeyListener{
     private Render draw;
+    private RenderCache cache;
     private JLabel image;
 
     /**
@@ -20,7 +21,7 @@ public class RenderFrame extends JFrame implements KeyListener{
 
     /**
      * Event handler for key releases
-     * Will pan or zoom the image given user input
+     * Will pan or zoom the image given user input, or toggle histogram equalization (H)
      * @param e the KeyEvent
      */
     public void keyReleased(KeyEvent e) {
@@ -43,8 +44,10 @@ public class RenderFrame extends JFrame implements KeyListener{
             draw.setZoom(draw.getZoom()*0.75);
         } else if (e.getKeyCode()== KeyEvent.VK_PERIOD) {
             draw.setZoom(draw.getZoom()*1.25);
+        } else if (e.getKeyCode()== KeyEvent.VK_H) {
+            draw.setEqualized(!draw.isEqualized());
         }
-        image.setIcon(new ImageIcon(draw.getImage()));
+        image.setIcon(new ImageIcon(cache.getImage(draw)));
         revalidate();
         repaint();
     }
@@ -61,6 +64,7 @@ public class RenderFrame extends JFrame implements KeyListener{
      */
     public RenderFrame(Render draw){
         this.draw = draw;
+        this.cache = new RenderCache(Runtime.getRuntime().maxMemory()/4);
         this.image = new JLabel();
         addKeyListener(this);
         setFocusable(true);
@@ -79,9 +83,10 @@ public class RenderFrame extends JFrame implements KeyListener{
                 setMinimumSize(new Dimension(draw.getWidth(), draw.getHeight()));
                 setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
                 getContentPane().add(image);
-                image.setIcon(new ImageIcon(draw.getImage()));
+                image.setIcon(new ImageIcon(cache.getImage(draw)));
                 pack();
                 setVisible(true);
+                Startup.reportFirstFrame();
             }
         });
     }
@@ -0,0 +1,489 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Supplier;
+import javax.imageio.ImageIO;
+
+/**
+ * A fixed view of a fractal used by the regression suite
+ */
+final class View {
+    private final String name;
+    private final Supplier<Fractal> fractal;
+    private final int width;
+    private final int height;
+    private final double zoom;
+    private final double centerx;
+    private final double centery;
+    private final boolean equalized;
+
+    /**
+     * Constructs a new View
+     * @param name the name of the view, also used for its golden image
+     * @param fractal creates the fractal, a fresh instance for every render
+     * @param width the width in pixels
+     * @param height the height in pixels
+     * @param zoom the zoom magnitude
+     * @param centerx the x coordinate of the center point
+     * @param centery the y coordinate of the center point
+     * @param equalized true for histogram equalized coloring
+     */
+    public View(String name, Supplier<Fractal> fractal, int width, int height, double zoom,
+                double centerx, double centery, boolean equalized) {
+        this.name = name;
+        this.fractal = fractal;
+        this.width = width;
+        this.height = height;
+        this.zoom = zoom;
+        this.centerx = centerx;
+        this.centery = centery;
+        this.equalized = equalized;
+    }
+
+    /**
+     * Creates a Render object for this view with a fresh fractal, so parallel renders
+     * discover Newton roots concurrently instead of reusing an earlier render's roots
+     * @return the Render object
+     */
+    public Render createRender() {
+        Render render = new Render(width, height, zoom, fractal.get(), centerx, centery);
+        render.setEqualized(equalized);
+        return render;
+    }
+
+    /**
+     * Get the name of the view
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Creates a new instance of the fractal
+     * @return fractal
+     */
+    public Fractal createFractal() {
+        return fractal.get();
+    }
+
+    /**
+     * Get the width in pixels
+     * @return width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the height in pixels
+     * @return height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Get the size of a pixel on the complex plane
+     * @return pixel ratio
+     */
+    public double getPixelRatio() {
+        return (fractal.get().getRange()/width)*(1/zoom);
+    }
+
+    /**
+     * Get the x coordinate of the center point
+     * @return centerx
+     */
+    public double getCenterx() {
+        return centerx;
+    }
+
+    /**
+     * Get the y coordinate of the center point
+     * @return centery
+     */
+    public double getCentery() {
+        return centery;
+    }
+
+    /**
+     * Check whether the view uses histogram equalized coloring
+     * @return equalized
+     */
+    public boolean isEqualized() {
+        return equalized;
+    }
+}
+
+/**
+ * Regression suite for the renderer. Every view in the catalog is rendered by a
+ * brute-force reference, which is compared to a stored golden image. Every rendering
+ * strategy of the app must then reproduce the reference image within its time and
+ * allocation budget for the view.
+ *
+ * Golden images and budgets are kept in the golden directory (default: regression),
+ * budgets in budgets.properties as "view.strategy.ms" and "view.strategy.mb".
+ * A missing golden image or budget is a failure. Run with "--record" after an intended
+ * change to rewrite the golden images and set every budget to BUDGET_FACTOR times the
+ * measured value, and "--golden DIR" to use a different golden directory.
+ * Exits with status 1 if any check fails.
+ */
+public class RenderRegression {
+    private static final int CHANNEL_TOLERANCE = 2;
+    private static final double PIXEL_TOLERANCE = 0.001;
+    private static final int TIMING_RUNS = 3;
+    private static final double BUDGET_FACTOR = 2.5;
+    private static final int TILE_SIZE = 64;
+
+    private static InetSocketAddress worker;
+
+    /**
+     * Renders a view in a particular way
+     */
+    private interface Strategy {
+        /**
+         * Renders the view
+         * @param view the view
+         * @return the image
+         * @throws IOException if the strategy needs a file and it cannot be used
+         */
+        BufferedImage render(View view) throws IOException;
+    }
+
+    /**
+     * The fixed catalog of views checked by the suite
+     * @return the views
+     */
+    static View[] getCatalog() {
+        return new View[] {
+            new View("mandelbrot-full", () -> new Mandelbrot(), 240, 180, 1, 0, 0, false),
+            new View("mandelbrot-seahorse", () -> new Mandelbrot(), 240, 180, 40, -0.745, 0.11, false),
+            new View("mandelbrot-equalized", () -> new Mandelbrot(), 240, 180, 1, 0, 0, true),
+            new View("newton-cubed", () -> new Newton(new Cubed()), 240, 180, 1, 0, 0, false),
+            new View("newton-cubed-center", () -> new Newton(new Cubed()), 240, 180, 20, 0, 0, false),
+            new View("newton-sine", () -> new Newton(new Sine()), 240, 180, 1, 0, 0, false),
+            new View("newton-sinh", () -> new Newton(new Sinh()), 240, 180, 1, 0, 0, false),
+            new View("newton-sine-equalized", () -> new Newton(new Sine()), 240, 180, 1, 0, 0, true),
+        };
+    }
+
+    /**
+     * Brute-force reference: every pixel is computed one after another on this thread,
+     * and equalized views are colored from a histogram built in a separate pass
+     * @param view the view
+     * @return the image
+     */
+    static BufferedImage renderReference(View view) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        double pixelRatio = view.getPixelRatio();
+        Fractal fractal = view.createFractal();
+        int maxIterations = fractal.getMaxIterations();
+
+        Sample[] samples = new Sample[width*height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double real = view.getCenterx() + ((x-width/2)*pixelRatio);
+                double imaginary = view.getCentery() + (-1*((y-height/2)*pixelRatio));
+                samples[y*width + x] = fractal.getSample(real, imaginary);
+            }
+        }
+
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        if (!view.isEqualized()) {
+            for (int i = 0; i < samples.length; i++) {
+                img.setRGB(i % width, i / width, samples[i].getColor());
+            }
+            return img;
+        }
+
+        //Level of n = fraction of escaped pixels with at most n iterations, found in a sorted copy
+        int[] sorted = new int[samples.length];
+        int escaped = 0;
+        for (Sample sample : samples) {
+            if (sample.getIterations() < maxIterations) {
+                sorted[escaped] = sample.getIterations();
+                escaped += 1;
+            }
+        }
+        sorted = Arrays.copyOf(sorted, escaped);
+        Arrays.sort(sorted);
+        for (int i = 0; i < samples.length; i++) {
+            int n = samples[i].getIterations();
+            int color = 0;
+            if (n < maxIterations) {
+                int below = Arrays.binarySearch(sorted, n + 1);
+                if (below < 0) {
+                    below = -below - 1;
+                }
+                while (below > 0 && sorted[below - 1] > n) {
+                    below -= 1;
+                }
+                color = fractal.getEqualizedColor(samples[i].getBase(), (double) below / escaped);
+            }
+            img.setRGB(i % width, i / width, color);
+        }
+        return img;
+    }
+
+    /**
+     * All the ways the app can render a frame, each of which must match the reference
+     * @return strategies by name
+     */
+    static Map<String, Strategy> getStrategies() {
+        Map<String, Strategy> strategies = new LinkedHashMap<String, Strategy>();
+        strategies.put("getImage", view -> view.createRender().getImage());
+        strategies.put("off-heap", view -> {
+            OffHeapRaster raster = new OffHeapRaster(view.getWidth(), view.getHeight());
+            view.createRender().renderTo(raster);
+            return raster.getImage(0, 0, view.getWidth(), view.getHeight());
+        });
+        strategies.put("mapped", view -> {
+            Path file = Files.createTempFile("regression", ".raster");
+            try (OffHeapRaster raster = new OffHeapRaster(view.getWidth(), view.getHeight(), file)) {
+                view.createRender().renderTo(raster);
+                return raster.getImage(0, 0, view.getWidth(), view.getHeight());
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        });
+        strategies.put("tiles", view -> {
+            if (view.isEqualized()) {
+                return null;
+            }
+            Render render = view.createRender();
+            BufferedImage img = new BufferedImage(view.getWidth(), view.getHeight(), BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < view.getHeight(); y += TILE_SIZE) {
+                for (int x = 0; x < view.getWidth(); x += TILE_SIZE) {
+                    int w = Math.min(TILE_SIZE, view.getWidth() - x);
+                    int h = Math.min(TILE_SIZE, view.getHeight() - y);
+                    img.setRGB(x, y, w, h, render.getTile(x, y, w, h), 0, w);
+                }
+            }
+            return img;
+        });
+        strategies.put("cache", view -> {
+            RenderCache cache = new RenderCache(Long.MAX_VALUE);
+            cache.getImage(view.createRender());
+            return cache.getImage(view.createRender());
+        });
+        strategies.put("coordinator", view -> {
+            if (view.isEqualized()) {
+                return null;
+            }
+            List<InetSocketAddress> workers = new ArrayList<InetSocketAddress>();
+            workers.add(getWorker());
+            return new RenderCoordinator(workers, TILE_SIZE).getImage(view.createRender());
+        });
+        return strategies;
+    }
+
+    /**
+     * Gets the address of a RenderWorker running in this JVM, starting it on first use
+     * @return the worker address
+     * @throws IOException if the worker cannot listen
+     */
+    private static synchronized InetSocketAddress getWorker() throws IOException {
+        if (worker == null) {
+            RenderWorker server = new RenderWorker(0);
+            Thread thread = new Thread(() -> {
+                try {
+                    server.serve();
+                } catch (IOException e) {
+                    System.err.println("RenderRegression: worker stopped: " + e.getMessage());
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            worker = new InetSocketAddress("localhost", server.getPort());
+        }
+        return worker;
+    }
+
+    /**
+     * Gets the heap allocated so far by all live threads, including the render pool
+     * @param threads the thread bean
+     * @return allocated bytes
+     */
+    private static long getAllocatedBytes(com.sun.management.ThreadMXBean threads) {
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Checks a measurement against its budget, or records a new budget
+     * @param budgets the budgets, updated when recording
+     * @param key the budget key
+     * @param measured the measured value
+     * @param unit the unit for messages
+     * @param record true to record a new budget
+     * @param failures receives a message if the budget is missing or exceeded
+     */
+    private static void checkBudget(Properties budgets, String key, long measured, String unit,
+                                    boolean record, List<String> failures) {
+        if (record) {
+            budgets.setProperty(key, Long.toString(Math.max(1, (long) Math.ceil(measured * BUDGET_FACTOR))));
+            return;
+        }
+        String budget = budgets.getProperty(key);
+        if (budget == null) {
+            failures.add(key + ": no budget, run with --record");
+        } else if (measured > Long.parseLong(budget)) {
+            failures.add(key + ": " + measured + " " + unit + ", budget is " + budget + " " + unit);
+        }
+    }
+
+    /**
+     * Counts the pixels whose color channels differ by more than the channel tolerance
+     * @param expected the expected image
+     * @param actual the actual image
+     * @return number of differing pixels, or -1 if the sizes don't match
+     */
+    static long countDifferences(BufferedImage expected, BufferedImage actual) {
+        if (expected.getWidth() != actual.getWidth() || expected.getHeight() != actual.getHeight()) {
+            return -1;
+        }
+        long differences = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int a = expected.getRGB(x, y);
+                int b = actual.getRGB(x, y);
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    if (Math.abs(((a >> shift) & 0xff) - ((b >> shift) & 0xff)) > CHANNEL_TOLERANCE) {
+                        differences += 1;
+                        break;
+                    }
+                }
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * Checks whether an image is close enough to the expected one
+     * @param expected the expected image
+     * @param actual the actual image
+     * @return true if at most the tolerated fraction of pixels differ
+     */
+    static boolean matches(BufferedImage expected, BufferedImage actual) {
+        long differences = countDifferences(expected, actual);
+        long allowed = (long) (PIXEL_TOLERANCE * expected.getWidth() * expected.getHeight());
+        return differences >= 0 && differences <= allowed;
+    }
+
+    /**
+     * Runs the suite
+     * @param args "--record" to rewrite the golden images and budgets, "--golden DIR" for the golden directory
+     * @throws IOException if the golden images or budgets cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        boolean record = false;
+        File goldenDir = new File("regression");
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--record")) {
+                record = true;
+            } else if (args[i].equals("--golden") && i+1 < args.length) {
+                goldenDir = new File(args[i+1]);
+                i += 1;
+            }
+        }
+        goldenDir.mkdirs();
+
+        File budgetFile = new File(goldenDir, "budgets.properties");
+        Properties budgets = new Properties();
+        if (budgetFile.exists()) {
+            try (FileReader reader = new FileReader(budgetFile)) {
+                budgets.load(reader);
+            }
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Map<String, Strategy> strategies = getStrategies();
+        List<String> failures = new ArrayList<String>();
+
+        for (View view : getCatalog()) {
+            BufferedImage reference = renderReference(view);
+            File golden = new File(goldenDir, view.getName() + ".png");
+            if (record) {
+                ImageIO.write(reference, "png", golden);
+                System.out.println("recorded " + golden);
+            } else if (!golden.exists()) {
+                failures.add(view.getName() + ": no golden image " + golden + ", run with --record");
+            } else if (!matches(ImageIO.read(golden), reference)) {
+                failures.add(view.getName() + ": " + countDifferences(ImageIO.read(golden), reference)
+                        + " pixels differ from " + golden);
+            }
+
+            for (Map.Entry<String, Strategy> strategy : strategies.entrySet()) {
+                //Best of several runs, the first one also warms up the JIT
+                BufferedImage img = null;
+                long bestTime = Long.MAX_VALUE;
+                long bestAllocation = Long.MAX_VALUE;
+                for (int run = 0; run < TIMING_RUNS; run++) {
+                    long allocated = getAllocatedBytes(threads);
+                    long start = System.nanoTime();
+                    img = strategy.getValue().render(view);
+                    bestTime = Math.min(bestTime, (System.nanoTime() - start) / 1000000);
+                    bestAllocation = Math.min(bestAllocation,
+                            (getAllocatedBytes(threads) - allocated + 1024 * 1024 - 1) / (1024 * 1024));
+                }
+                if (img == null) {
+                    continue;
+                }
+                String key = view.getName() + "." + strategy.getKey();
+                System.out.printf("%-40s %6d ms %6d MB%n", key, bestTime, bestAllocation);
+
+                if (!matches(reference, img)) {
+                    failures.add(key + ": differs from the reference in " + countDifferences(reference, img) + " pixels");
+                }
+                checkBudget(budgets, key + ".ms", bestTime, "ms", record, failures);
+                //The coordinator's connection threads end with the render, so their allocations can't be counted
+                if (!strategy.getKey().equals("coordinator")) {
+                    checkBudget(budgets, key + ".mb", bestAllocation, "MB", record, failures);
+                }
+            }
+        }
+
+        if (record) {
+            List<String> keys = new ArrayList<String>(budgets.stringPropertyNames());
+            Collections.sort(keys);
+            try (PrintWriter writer = new PrintWriter(budgetFile)) {
+                writer.println("# Recorded by RenderRegression --record: " + BUDGET_FACTOR + "x the best of "
+                        + TIMING_RUNS + " runs");
+                for (String key : keys) {
+                    writer.println(key + "=" + budgets.getProperty(key));
+                }
+            }
+            System.out.println("recorded " + budgetFile);
+        }
+
+        if (failures.isEmpty()) {
+            System.out.println("All views passed");
+            return;
+        }
+        for (String failure : failures) {
+            System.out.println("FAIL " + failure);
+        }
+        System.exit(1);
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Worker process that renders tiles for a RenderCoordinator over a socket
+ *
+ * Protocol (repeated until the coordinator closes the connection):
+ *   request:  fractal description (UTF), range, width, height, zoom, centerx, centery,
+ *             tile x, tile y, tile width, tile height
+ *   response: tile width * tile height rgb ints, then as many iteration counts, in row major order
+ *
+ * Each tile is rendered with all cores of the worker machine
+ */
+public class RenderWorker {
+    private ServerSocket server;
+
+    /**
+     * Constructs a worker listening on the given port
+     * @param port the port (zero to pick any free port)
+     * @throws IOException if the port cannot be opened
+     */
+    public RenderWorker(int port) throws IOException {
+        this.server = new ServerSocket(port);
+    }
+
+    /**
+     * Get the port the worker is listening on
+     * @return port
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accepts coordinator connections forever, serving each one on its own thread
+     * @throws IOException if the server socket fails
+     */
+    public void serve() throws IOException {
+        while (true) {
+            Socket socket = server.accept();
+            //Responses are followed by small requests, don't let them wait for delayed ACKs
+            socket.setTcpNoDelay(true);
+            Thread thread = new Thread(() -> handle(socket));
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Answers tile requests on a single connection until it is closed
+     * @param socket the connection to the coordinator
+     */
+    private void handle(Socket socket) {
+        //Reuse fractal objects so Newton roots are only discovered once per connection
+        Map<String, Fractal> fractals = new HashMap<String, Fractal>();
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (true) {
+                String description;
+                try {
+                    description = in.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                double range = in.readDouble();
+                Fractal fractal = fractals.computeIfAbsent(description + "@" + range,
+                        key -> createFractal(description, range));
+                Render render = new Render(in.readInt(), in.readInt(), in.readDouble(), fractal,
+                                           in.readDouble(), in.readDouble());
+                int x = in.readInt();
+                int y = in.readInt();
+                int tileWidth = in.readInt();
+                int tileHeight = in.readInt();
+
+                int[] pixels = new int[tileWidth*tileHeight];
+                int[] iterations = new int[tileWidth*tileHeight];
+                render.renderTile(x, y, tileWidth, tileHeight, pixels, iterations);
+                for (int rgb : pixels) {
+                    out.writeInt(rgb);
+                }
+                for (int count : iterations) {
+                    out.writeInt(count);
+                }
+                out.flush();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("RenderWorker: dropping connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recreates a fractal from the description sent by the coordinator
+     * @param description the fractal's toString()
+     * @param range abs(xmax-xmin)
+     * @return the fractal
+     */
+    static Fractal createFractal(String description, double range) {
+        if (description.equals(new Mandelbrot(range).toString())) {
+            return new Mandelbrot(range);
+        }
+        for (Function func : new Function[]{new Sine(), new Sinh(), new Cubed()}) {
+            Newton newton = new Newton(func, range);
+            if (description.equals(newton.toString())) {
+                return newton;
+            }
+        }
+        throw new IllegalArgumentException("Unknown fractal: " + description);
+    }
+
+    /**
+     * Starts a worker and prints the port it listens on as the first line of output
+     * @param args optional port (default: any free port)
+     * @throws IOException if the worker cannot listen
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        RenderWorker worker = new RenderWorker(port);
+        System.out.println(worker.getPort());
+        System.out.flush();
+        worker.serve();
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Represents the color and iteration count computed at a complex point
+ */
+final class Sample {
+    private final int color;
+    private final int base;
+    private final int iterations;
+
+    /**
+     * Constructs a new Sample
+     * @param color the rgb color at the point
+     * @param base the fractal specific value equalized coloring starts from (e.g. the root for Newton)
+     * @param iterations the number of iterations computed at the point
+     */
+    public Sample(int color, int base, int iterations) {
+        this.color = color;
+        this.base = base;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Gets the rgb color
+     * @return color
+     */
+    public int getColor() {
+        return color;
+    }
+
+    /**
+     * Gets the value histogram equalized coloring starts from
+     * @return base
+     */
+    public int getBase() {
+        return base;
+    }
+
+    /**
+     * Gets the number of iterations
+     * @return iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Startup helpers: class data sharing, JIT warm-up and time-to-first-frame reporting
+ */
+public class Startup {
+    private static final String ARCHIVE = "fractalvision.jsa";
+    private static final String CDS_PROPERTY = "fractalvision.cds";
+    private static final String CDS_ARCHIVE_PROPERTY = "fractalvision.cds.archive";
+    private static final String START_PROPERTY = "fractalvision.start";
+    private static final int WARMUP_SIZE = 64;
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static Thread warmup;
+    private static long inputStart;
+    private static long inputMillis;
+
+    /**
+     * Relaunches the app in a new JVM that uses an AppCDS archive of the loaded classes.
+     * The first launch records the archive when the app exits, later launches map it in
+     * so Swing and commons-numbers classes don't have to be loaded and verified again.
+     * The archive is recreated when the jars or the JDK are newer than it.
+     *
+     * The JVM only archives classes loaded from jar files, so the app has to be started
+     * from a jar: build the "FractalVision:jar" artifact in IntelliJ (Build, Build Artifacts),
+     * or run "jar cf FractalVision.jar -C out/production/FractalVision ." and start with
+     * java -cp FractalVision.jar:commons-numbers-complex-1.1.jar:commons-numbers-core-1.1.jar Main --cds
+     * @param args the cmd line args for the relaunched app
+     * @return the exit code of the relaunched app, or -1 to continue in this JVM
+     *         (already using the archive, or not started from jar files)
+     * @throws IOException if the JVM cannot be started
+     * @throws InterruptedException if interrupted while waiting for the app
+     */
+    public static int relaunchWithArchive(String[] args) throws IOException, InterruptedException {
+        if (Boolean.getBoolean(CDS_PROPERTY)) {
+            return -1;
+        }
+        //The JVM only archives classes loaded from jar files
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (new File(entry).isDirectory()) {
+                System.out.println("Class data sharing needs the app packaged as a jar, starting without it");
+                return -1;
+            }
+        }
+        File archive = new File(ARCHIVE);
+        boolean current = isArchiveCurrent(archive);
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (!current) {
+            System.out.println("Creating class data archive " + archive.getPath() + " on exit");
+        }
+        if (Runtime.version().feature() >= 19) {
+            //The JVM validates the archive itself and regenerates it when stale
+            command.add("-XX:+AutoCreateSharedArchive");
+            command.add("-XX:SharedArchiveFile=" + archive.getPath());
+        } else if (current) {
+            command.add("-XX:SharedArchiveFile=" + archive.getPath());
+        } else {
+            command.add("-XX:ArchiveClassesAtExit=" + archive.getPath());
+        }
+        command.add("-D" + CDS_PROPERTY + "=true");
+        command.add("-D" + CDS_ARCHIVE_PROPERTY + "=" + current);
+        //Measure time-to-first-frame from this JVM's start, so the relaunch is counted too
+        command.add("-D" + START_PROPERTY + "=" + getStartMillis());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("Main");
+        for (String arg : args) {
+            command.add(arg);
+        }
+        return new ProcessBuilder(command).inheritIO().start().waitFor();
+    }
+
+    /**
+     * Checks whether an archive can be used as is: the JVM rejects an archive that is
+     * older than the JDK or any jar on the classpath and runs without it
+     * @param archive the archive file
+     * @return true if the archive exists and is newer than the JDK and the classpath
+     */
+    private static boolean isArchiveCurrent(File archive) {
+        if (!archive.exists()) {
+            return false;
+        }
+        List<File> sources = new ArrayList<File>();
+        sources.add(new File(System.getProperty("java.home"), "lib" + File.separator + "modules"));
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            sources.add(new File(entry));
+        }
+        for (File source : sources) {
+            if (source.lastModified() > archive.lastModified()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts compiling the fractal kernels in the background by rendering a few
+     * small off-screen frames, so the first real frame doesn't run interpreted
+     * @param fractals the fractals to warm up
+     */
+    public static void startWarmup(Fractal[] fractals) {
+        warmup = new Thread(() -> {
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                for (Fractal fractal : fractals) {
+                    Render render = new Render(WARMUP_SIZE, WARMUP_SIZE, 1, fractal);
+                    render.getImage();
+                    render.setEqualized(true);
+                    render.getImage();
+                }
+            }
+        });
+        warmup.setDaemon(true);
+        warmup.setPriority(Thread.MIN_PRIORITY);
+        warmup.start();
+    }
+
+    /**
+     * Waits for the warm-up started by startWarmup (if any) to finish
+     */
+    public static void awaitWarmup() {
+        if (warmup == null) {
+            return;
+        }
+        try {
+            warmup.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Marks the start of waiting for user input, which is excluded from time-to-first-frame
+     */
+    public static void startInput() {
+        inputStart = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of waiting for user input
+     */
+    public static void endInput() {
+        inputMillis += (System.nanoTime() - inputStart) / 1000000;
+    }
+
+    /**
+     * Gets the start time of the app in epoch milliseconds: the launching JVM's start when
+     * relaunched with a class data archive, otherwise this JVM's start
+     * @return start time, or -1 if unknown
+     */
+    private static long getStartMillis() {
+        long start = Long.getLong(START_PROPERTY, -1);
+        if (start >= 0) {
+            return start;
+        }
+        return ProcessHandle.current().info().startInstant().map(Instant::toEpochMilli).orElse(-1L);
+    }
+
+    /**
+     * Prints the time from app start until the first frame was shown, not counting user input
+     */
+    public static void reportFirstFrame() {
+        long start = getStartMillis();
+        if (start < 0) {
+            return;
+        }
+        long total = System.currentTimeMillis() - start;
+        System.out.println("Time to first frame: " + (total - inputMillis) + " ms"
+                + " (" + inputMillis + " ms of input excluded"
+                + getArchiveLabel() + ")");
+    }
+
+    /**
+     * Describes how class data sharing was used for the time-to-first-frame report
+     * @return the label, empty when the app runs without the archive
+     */
+    private static String getArchiveLabel() {
+        if (!Boolean.getBoolean(CDS_PROPERTY)) {
+            return "";
+        }
+        //A missing or stale archive is only written at exit, this run loaded every class itself
+        return Boolean.getBoolean(CDS_ARCHIVE_PROPERTY) ? ", class data archive" : ", creating class data archive";
+    }
+}